@@ -1,8 +1,13 @@
 package org.demo.concurrent.structure;
 
 import java.util.*;
-import java.util.concurrent.atomic.AtomicInteger;
-import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 import java.util.function.Consumer;
 import java.util.function.Predicate;
 import java.util.function.UnaryOperator;
@@ -18,30 +23,109 @@ import static java.util.Collections.emptyListIterator;
 public class ConcurrentLinkedList<E> extends AbstractSequentialList<E> implements INodeLinkedList<E> {
 
     /** Sentinel nodes. */
-    private final transient Node<E> head = new Node<>();
+    private final transient Node<E> head;
     private final transient Node<E> tail = new Node<>();
 
-    private transient Node<E> tailPrev;
-
-    private AtomicInteger atomicSize = new AtomicInteger(0);
+    /** tailPrev and size, kept off the cache line of the read-mostly fields. */
+    private final transient Hot<E> hot = new Hot<>();
 
     Comparator<E> comparator;
 
+    /** Maximum number of elements kept; Integer.MAX_VALUE when unbounded. */
+    private final int capacity;
+
+    /**
+     * Snapshot gate, null unless snapshots are enabled. Mutators share the
+     * read side; opening and closing a snapshot takes the write side.
+     */
+    private final transient ReentrantReadWriteLock gate;
+
+    /** Held by every mutation: the gate's read side, or a no-op. */
+    private final transient Lock mutationLock;
+
+    /** Next snapshot epoch; writes stamp their versions with it. Guarded by gate. */
+    private long epoch;
+
+    /** Number of open snapshots. Guarded by gate. */
+    private int snapshots;
+
+    /** Epochs of the open snapshots. Guarded by gate. */
+    private final transient TreeSet<Long> openEpochs = new TreeSet<>();
+
+    /**
+     * Epoch of the oldest open snapshot. No snapshot reads a version
+     * stamped at or before it, so writers drop those. Guarded by gate.
+     */
+    private long minOpenEpoch;
+
+    /*
+     * Expiry settings, zero when disabled. Set while the list is empty and
+     * before it is shared.
+     */
+    private boolean expiring;
+    private long expireAfterWriteNanos;
+    private long expireAfterAccessNanos;
+    private long cleanUpIntervalNanos;
+
+    /** System.nanoTime() of the last amortized clean-up. */
+    private final AtomicLong cleanedUpAt = new AtomicLong(System.nanoTime());
+
     /**
      * Constructor.
      */
     public ConcurrentLinkedList() {
-        head.next = tail;
-        tailPrev = head;
+        this(null, false);
     }
 
     /**
      * Constructs an empty list.
      */
     public ConcurrentLinkedList(final Comparator<E> comparator) {
+        this(comparator, false);
+    }
+
+    /**
+     * Constructs an empty list.
+     *
+     * @param snapshots whether {@link #snapshot()} is supported; mutations
+     *                  then take a shared lock so that a snapshot can be opened
+     *                  between them
+     */
+    public ConcurrentLinkedList(final Comparator<E> comparator, final boolean snapshots) {
+        this(comparator, Integer.MAX_VALUE, snapshots);
+    }
+
+    /**
+     * Constructs an empty top-K list that keeps at most {@code capacity}
+     * elements, best first. When full, an element that does not sort
+     * before the current last one is rejected; any other evicts the last
+     * one.
+     *
+     * @throws IllegalArgumentException if comparator is null or capacity is
+     *                                  not positive
+     */
+    public ConcurrentLinkedList(final Comparator<E> comparator, final int capacity) {
+        this(comparator, capacity, false);
+    }
+
+    /**
+     * Constructs an empty list.
+     *
+     * @param capacity  maximum number of elements, see
+     *                  {@link #ConcurrentLinkedList(Comparator, int)}
+     * @param snapshots whether {@link #snapshot()} is supported
+     */
+    public ConcurrentLinkedList(final Comparator<E> comparator, final int capacity, final boolean snapshots) {
+        if (capacity <= 0 || (capacity != Integer.MAX_VALUE && comparator == null)) {
+            throw new IllegalArgumentException();
+        }
         this.comparator = comparator;
+        this.capacity = capacity;
+        this.gate = snapshots ? new ReentrantReadWriteLock() : null;
+        this.mutationLock = snapshots ? this.gate.readLock() : NoLock.INSTANCE;
+        this.head = snapshots ? new VersionedNode<>(null) : new Node<>();
         head.next = tail;
-        tailPrev = head;
+        this.hot.tailPrev = head;
     }
 
     /**
@@ -70,88 +154,286 @@ public class ConcurrentLinkedList<E> extends AbstractSequentialList<E> implement
         return new ListItr();
     }
 
+    /**
+     * {@inheritDoc}
+     * <p>
+     * In expiry mode the count includes expired elements not yet unlinked.
+     */
     @Override
     public int size() {
-        return atomicSize.get();
+        return this.hot.size();
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Unlike {@link #size()}, does not count expired elements not yet
+     * unlinked.
+     */
+    @Override
+    public boolean isEmpty() {
+        return nextOf(head, this.now()) == tail;
+    }
+
+    /**
+     * Returns the top-K capacity, or Integer.MAX_VALUE when unbounded.
+     */
+    int capacity() {
+        return this.capacity;
+    }
+
+    // Expiry Operations
+
+    /**
+     * Makes elements expire the given time after they were added or last
+     * updated through {@link #nodeUpdate}. Expired elements are never
+     * returned; they are unlinked in batches by {@link #cleanUp()}, by
+     * writes once per expiry period, and by writes passing over them.
+     *
+     * @return this list
+     * @throws IllegalStateException if the list is not empty
+     */
+    public ConcurrentLinkedList<E> expireAfterWrite(final long duration, final TimeUnit unit) {
+        this.expireAfterWriteNanos = this.checkExpiry(duration, unit);
+        return this;
+    }
+
+    /**
+     * Makes elements expire the given time after they were added, updated,
+     * or last found by {@link #getNode}, {@link #contains} or {@link #get}.
+     *
+     * @return this list
+     * @throws IllegalStateException if the list is not empty
+     * @see #expireAfterWrite(long, TimeUnit)
+     */
+    public ConcurrentLinkedList<E> expireAfterAccess(final long duration, final TimeUnit unit) {
+        this.expireAfterAccessNanos = this.checkExpiry(duration, unit);
+        return this;
+    }
+
+    private long checkExpiry(final long duration, final TimeUnit unit) {
+        if (duration <= 0) {
+            throw new IllegalArgumentException();
+        }
+        if (!this.isEmpty()) {
+            throw new IllegalStateException("expiry must be set on an empty list");
+        }
+        final long nanos = unit.toNanos(duration);
+        this.expiring = true;
+        this.cleanUpIntervalNanos = this.cleanUpIntervalNanos == 0 ? nanos : Math.min(this.cleanUpIntervalNanos, nanos);
+        return nanos;
+    }
+
+    /**
+     * Unlinks all expired elements in a single pass. May be called
+     * periodically from a scheduler in addition to the amortized clean-up.
+     */
+    public void cleanUp() {
+        final Lock lock = this.mutationLock;
+        lock.lock();
+        try {
+            this.cleanedUpAt.set(System.nanoTime());
+            this.sweep();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Runs {@link #cleanUp()} if an expiry period passed since the last one;
+     * only the thread winning the CAS pays for the pass.
+     */
+    private void maybeCleanUp(final long now) {
+        final long last = this.cleanedUpAt.get();
+        if (now - last >= this.cleanUpIntervalNanos && this.cleanedUpAt.compareAndSet(last, now)) {
+            this.sweep();
+        }
+    }
+
+    private Node<E> newNode(final E e) {
+        if (this.gate == null) {
+            return this.expiring ? new TimedNode<>(e) : new Node<>(e, null);
+        }
+        return this.expiring ? new TimedVersionedNode<>(e) : new VersionedNode<>(e);
+    }
+
+    private void stampWrite(final Node<E> node, final long now) {
+        if (node instanceof TimedNode) {
+            final TimedNode<E> timed = (TimedNode<E>) node;
+            timed.writeDeadline = now + this.expireAfterWriteNanos;
+            timed.expiresAt = this.deadline(timed, now);
+        }
+    }
+
+    private void touch(final Node<E> node, final long now) {
+        if (this.expireAfterAccessNanos != 0 && node instanceof TimedNode) {
+            final TimedNode<E> timed = (TimedNode<E>) node;
+            timed.expiresAt = this.deadline(timed, now);
+        }
+    }
+
+    private long deadline(final TimedNode<E> node, final long now) {
+        if (this.expireAfterWriteNanos == 0) {
+            return now + this.expireAfterAccessNanos;
+        }
+        if (this.expireAfterAccessNanos == 0) {
+            return node.writeDeadline;
+        }
+        final long accessDeadline = now + this.expireAfterAccessNanos;
+        return accessDeadline - node.writeDeadline < 0 ? accessDeadline : node.writeDeadline;
+    }
+
+    /**
+     * Reads the clock for expiry checks. Each operation or traversal reads
+     * it once and passes it down rather than reading it per node.
+     */
+    private long now() {
+        return this.expiring ? System.nanoTime() : 0L;
+    }
+
+    private boolean isExpired(final Node<E> node, final long now) {
+        return this.expiring && node instanceof TimedNode
+                && now - ((TimedNode<E>) node).expiresAt >= 0;
+    }
+
+    /**
+     * Returns the next live node after x, skipping the ones expired at now.
+     */
+    Node<E> nextOf(final Node<E> x, final long now) {
+        Node<E> n = x.getNext();
+        if (this.expiring) {
+            while (this.isExpired(n, now)) {
+                n = n.getNext();
+            }
+        }
+        return n;
     }
 
+    /**
+     * {@inheritDoc}
+     *
+     * @return the new node, or null if a full top-K list rejected e
+     */
     @Override
     public Node<E> nodeAdd(E e) {
-        if (Objects.nonNull(this.comparator)
-                && tailPrev != head
-                && this.comparator.compare(e, tailPrev.item) < 0) {
-            return this.linkSort(e);
-        } else {
-            return this.linkLast(e);
+        final Lock lock = this.mutationLock;
+        lock.lock();
+        try {
+            final Node<E> node = this.newNode(e);
+            return this.offer(e, node) ? node : null;
+        } finally {
+            lock.unlock();
         }
     }
 
+    /**
+     * {@inheritDoc}
+     * <p>
+     * A full top-K list leaves the node unlinked if it rejects e.
+     *
+     * @throws IllegalArgumentException if node was linked before: a removed
+     *                                  node stays dead, as a stale traversal
+     *                                  may still unlink it by its old links
+     */
     @Override
     public void nodeAdd(E e, Node<E> node) {
-        if (Objects.nonNull(this.comparator)
-                && tailPrev != head
-                && this.comparator.compare(e, tailPrev.item) < 0) {
-            this.linkSort(e, node);
-        } else {
-            this.linkLast(e, node);
+        if (node.rawNext() != null) {
+            throw new IllegalArgumentException("node was already linked");
+        }
+        final Lock lock = this.mutationLock;
+        lock.lock();
+        try {
+            this.offer(e, node);
+        } finally {
+            lock.unlock();
         }
     }
 
+    /**
+     * Appends, or in comparator mode inserts, the specified element.
+     *
+     * @return {@code false} if a full top-K list rejected e
+     */
+    @Override
+    public boolean add(final E e) {
+        return this.nodeAdd(e) != null;
+    }
+
+    /**
+     * Removes the node. The node stays dead afterwards and cannot be linked
+     * again.
+     */
     @Override
     public boolean nodeRemove(Node<E> node) {
-        Node<E> pred = null, curr = null, succ = null;
-        // initialization
-        pred = head;
-        curr = pred.next;
-        // traverse linked list
-        while (curr != tail) {
-            succ = curr.next;
-            if (curr == node) {
-                pred.casNext(curr, succ);
-                if (succ == tail) {
-                    tailPrev = pred;
+        final Lock lock = this.mutationLock;
+        lock.lock();
+        try {
+            final long now = this.now();
+            Node<E> pred = head;
+            for (;;) {
+                final Node<E> curr = this.helpNext(pred, now);
+                if (curr == null) {
+                    // pred was removed under us: restart
+                    pred = head;
+                } else if (curr == tail) {
+                    return false;
+                } else if (curr == node) {
+                    return this.unlink(pred, curr);
+                } else {
+                    pred = curr;
                 }
-                atomicSize.decrementAndGet();
-                return true;
-            } else {
-                // continue searching
-                pred = curr;
-                curr = succ;
             }
+        } finally {
+            lock.unlock();
         }
-        return false;
     }
 
     @Override
     public Node<E> nodeRemove(E e) {
-        Node<E> pred = null, curr = null, succ = null;
-        // initialization
-        pred = head;
-        curr = pred.next;
-        // traverse linked list
-        while (curr != tail) {
-            succ = curr.next;
-            if (e.equals(curr.item)) {
-                pred.casNext(curr, succ);
-                if (succ == tail) {
-                    tailPrev = pred;
+        final Lock lock = this.mutationLock;
+        lock.lock();
+        try {
+            final long now = this.now();
+            Node<E> pred = head;
+            for (;;) {
+                final Node<E> curr = this.helpNext(pred, now);
+                if (curr == null) {
+                    pred = head;
+                } else if (curr == tail) {
+                    return null;
+                } else if (e.equals(curr.item) && this.unlink(pred, curr)) {
+                    return curr;
+                } else {
+                    pred = curr;
                 }
-                atomicSize.decrementAndGet();
-                return curr;
-            } else {
-                // continue searching
-                pred = curr;
-                curr = succ;
             }
+        } finally {
+            lock.unlock();
         }
-        return null;
     }
 
+    /**
+     * Re-inserts the element of node at its current place in a new node.
+     * The given node is removed and stays dead: relinking it would let a
+     * traversal that still holds its old successor unlink it again.
+     *
+     * @return the new node, or null if node was not in the list or a full
+     * top-K list rejected its element
+     */
     @Override
-    public void nodeUpdate(final Node<E> node) {
-        final E item = node.item;
-        this.nodeRemove(node);
-        this.nodeAdd(item, node);
+    public Node<E> nodeUpdate(final Node<E> node) {
+        final Lock lock = this.mutationLock;
+        lock.lock();
+        try {
+            final E item = node.item;
+            if (!this.nodeRemove(node)) {
+                return null;
+            }
+            final Node<E> updated = this.newNode(item);
+            return this.offer(item, updated) ? updated : null;
+        } finally {
+            lock.unlock();
+        }
     }
 
     @Override
@@ -161,31 +443,42 @@ public class ConcurrentLinkedList<E> extends AbstractSequentialList<E> implement
 
     @Override
     public Node<E> getNode(E e, Comparator<E> comparator) {
-        Node<E> curr = head.next;
+        final long now = this.now();
+        Node<E> curr = nextOf(head, now);
         while (curr != tail) {
             if (comparator.compare(e, curr.item) == 0) {
+                this.touch(curr, now);
                 return curr;
             }
-            curr = curr.next;
+            curr = nextOf(curr, now);
         }
         return null;
     }
 
     @Override
     public ConcurrentLinkedList<E> nodeCloneAndDelete(final Node<E> node) {
-        final ConcurrentLinkedList<E> clone = new ConcurrentLinkedList<>(this.comparator);
+        final ConcurrentLinkedList<E> clone = new ConcurrentLinkedList<>(this.comparator, this.capacity, this.gate != null);
 
         // Put clone into "virgin" state
-        clone.atomicSize = new AtomicInteger(atomicSize.get());
         clone.modCount = 0;
         clone.comparator = this.comparator;
+        clone.expiring = this.expiring;
+        clone.expireAfterWriteNanos = this.expireAfterWriteNanos;
+        clone.expireAfterAccessNanos = this.expireAfterAccessNanos;
+        clone.cleanUpIntervalNanos = this.cleanUpIntervalNanos;
 
         // Initialize clone with our elements
-        for (Node<E> x = this.head.next; x != tail; x = x.next) {
+        final long now = this.now();
+        for (Node<E> x = nextOf(this.head, now); x != tail; x = nextOf(x, now)) {
             if (x.equals(node)) {
                 continue;
             }
-            clone.linkLast(x.item);
+            final Node<E> copy = clone.newNode(x.item);
+            if (x instanceof TimedNode) {
+                ((TimedNode<E>) copy).writeDeadline = ((TimedNode<E>) x).writeDeadline;
+                ((TimedNode<E>) copy).expiresAt = ((TimedNode<E>) x).expiresAt;
+            }
+            clone.link(x.item, copy, now);
         }
         return clone;
     }
@@ -201,98 +494,795 @@ public class ConcurrentLinkedList<E> extends AbstractSequentialList<E> implement
      */
     @Override
     public boolean contains(final Object o) {
-        Node<E> curr = head.next;
+        final long now = this.now();
+        Node<E> curr = nextOf(head, now);
         while (curr != tail) {
             if (o.equals(curr.item)) {
+                this.touch(curr, now);
                 return true;
             }
-            curr = curr.next;
+            curr = nextOf(curr, now);
+        }
+        return false;
+    }
+
+    /**
+     * Links node unless the list is full and e does not sort before its last
+     * element, then evicts from the end down to capacity.
+     */
+    private boolean offer(final E e, final Node<E> node) {
+        final long now = this.now();
+        if (this.expiring) {
+            this.stampWrite(node, now);
+            this.maybeCleanUp(now);
+        }
+        if (this.capacity == Integer.MAX_VALUE) {
+            this.link(e, node, now);
+            return true;
+        }
+        if (hot.size() >= this.capacity) {
+            // O(1) through the tailPrev hint: no traversal to reject
+            final Node<E> last = hot.tailPrev();
+            if (last != head && last.rawNext() == tail && !this.isExpired(last, now)
+                    && this.comparator.compare(e, last.item) >= 0) {
+                return false;
+            }
+        }
+        this.link(e, node, now);
+        this.trim();
+        return true;
+    }
+
+    /**
+     * Evicts from the end down to capacity. Each eviction is claimed by
+     * taking one off the size before unlinking, so that inserters racing
+     * over the same overflow never evict more than the excess.
+     */
+    private void trim() {
+        for (int size; (size = hot.size()) > this.capacity; ) {
+            if (hot.casSize(size, size - 1) && this.removeLast(true) == null) {
+                // emptied under us: hand the claim back
+                hot.addSize(1);
+            }
+        }
+    }
+
+    /**
+     * Links node holding e: in comparator order after any equal elements,
+     * otherwise as last element. Starts from tailPrev when e sorts after it.
+     */
+    private void link(final E e, final Node<E> node, final long now) {
+        final Comparator<E> cmp = this.comparator;
+        final Node<E> hint = hot.tailPrev();
+        this.linkFrom(Objects.isNull(cmp) || hint == head || cmp.compare(e, hint.item) >= 0 ? hint : head, e, node, now);
+        hot.addSize(1);
+    }
+
+    /**
+     * Links node holding e at its place at or after pred, without counting it.
+     */
+    private void linkFrom(Node<E> pred, final E e, final Node<E> node, final long now) {
+        final Comparator<E> cmp = this.comparator;
+        for (;;) {
+            final Node<E> curr = this.helpNext(pred, now);
+            if (curr == null) {
+                // pred was removed under us: restart
+                pred = head;
+            } else if (curr != tail && (Objects.isNull(cmp) || cmp.compare(e, curr.item) >= 0)) {
+                pred = curr;
+            } else {
+                // locate a window: do insert
+                this.setNext(node, curr);
+                node.setPrev(pred);
+                if (this.casNext(pred, curr, node)) {
+                    if (curr == tail) {
+                        hot.setTailPrev(node);
+                    } else {
+                        curr.setPrev(node);
+                    }
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the first live successor of pred, unlinking removed nodes and
+     * nodes expired at now on the way, or null if pred itself has been
+     * removed.
+     */
+    private Node<E> helpNext(final Node<E> pred, final long now) {
+        for (;;) {
+            final Node<E> curr = pred.rawNext();
+            if (curr instanceof Marker) {
+                return null;
+            }
+            if (curr == tail) {
+                return curr;
+            }
+            final Node<E> succ = curr.rawNext();
+            if (!(succ instanceof Marker)) {
+                if (!this.isExpired(curr, now)) {
+                    return curr;
+                }
+                // reap in passing, then snip it on the next round
+                if (this.mark(curr) != null) {
+                    hot.addSize(-1);
+                }
+                continue;
+            }
+            this.snip(pred, curr, succ.rawNext());
+        }
+    }
+
+    /**
+     * Logically removes node by appending a marker to it, after which no
+     * node can be linked behind it.
+     *
+     * @return the successor frozen by the marker, or null if another thread
+     * removed the node first
+     */
+    private Node<E> mark(final Node<E> node) {
+        for (;;) {
+            final Node<E> succ = node.rawNext();
+            if (succ instanceof Marker) {
+                return null;
+            }
+            if (this.casNext(node, succ, new Marker<>(succ, this.epoch))) {
+                return succ;
+            }
+        }
+    }
+
+    /**
+     * Physically unlinks a marked node; on failure a later traversal does it.
+     */
+    private boolean snip(final Node<E> pred, final Node<E> node, final Node<E> succ) {
+        if (this.casNext(pred, node, succ)) {
+            if (succ == tail) {
+                hot.setTailPrev(pred);
+            } else {
+                succ.setPrev(pred);
+            }
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Removes node, found behind pred, and counts it.
+     *
+     * @return false if another thread removed it first
+     */
+    private boolean unlink(final Node<E> pred, final Node<E> node) {
+        return this.unlink(pred, node, true);
+    }
+
+    /**
+     * @param count whether to take node off the size; false when the caller
+     *              already claimed the removal
+     */
+    private boolean unlink(final Node<E> pred, final Node<E> node, final boolean count) {
+        final Node<E> succ = this.mark(node);
+        if (succ == null) {
+            return false;
+        }
+        if (count) {
+            hot.addSize(-1);
+        }
+        this.snip(pred, node, succ);
+        return true;
+    }
+
+    /**
+     * Walks the whole list, unlinking every removed or expired node still
+     * linked.
+     */
+    private void sweep() {
+        final long now = this.now();
+        Node<E> pred = head;
+        for (;;) {
+            final Node<E> curr = this.helpNext(pred, now);
+            if (curr == tail) {
+                return;
+            }
+            pred = curr == null ? head : curr;
+        }
+    }
+
+    /**
+     * CASes pred.next, recording the replaced successor for open snapshots.
+     */
+    private boolean casNext(final Node<E> pred, final Node<E> o, final Node<E> n) {
+        if (this.snapshots == 0) {
+            return pred.casNext(o, n);
+        }
+        synchronized (pred) {
+            if (pred.rawNext() != o) {
+                return false;
+            }
+            // publish the old version before the new successor
+            this.pushVersion(pred, o);
+            pred.lazySetNext(n);
+            return true;
+        }
+    }
+
+    /**
+     * Sets node.next for a node being (re)linked, recording the replaced
+     * successor for open snapshots.
+     */
+    private void setNext(final Node<E> node, final Node<E> n) {
+        if (this.snapshots == 0) {
+            if (node.getVersions() != null) {
+                // kept from snapshots closed while the node was unlinked
+                node.setVersions(null);
+            }
+            node.lazySetNext(n);
+            return;
+        }
+        synchronized (node) {
+            this.pushVersion(node, node.rawNext());
+            node.lazySetNext(n);
+        }
+    }
+
+    /**
+     * Records o as the successor of node before the current epoch, pruning
+     * versions no open snapshot reads. Called holding node's monitor.
+     * <p>
+     * A snapshot takes the oldest version newer than its epoch, so of the
+     * versions written in one epoch only the first counts, and the chain
+     * stays no longer than the number of epochs since the oldest snapshot.
+     */
+    private void pushVersion(final Node<E> node, final Node<E> o) {
+        final Version<E> versions = node.getVersions();
+        if (versions != null && versions.epoch == this.epoch) {
+            return;
+        }
+        node.setVersions(new Version<>(o, this.epoch, this.prune(versions)));
+    }
+
+    /**
+     * Cuts the versions stamped at or before the oldest open snapshot off
+     * the chain. Readers racing with the cut may still follow them, which
+     * is harmless since they do not change what any open snapshot sees.
+     */
+    private Version<E> prune(final Version<E> versions) {
+        if (versions == null || versions.epoch <= this.minOpenEpoch) {
+            return null;
+        }
+        for (Version<E> v = versions; v.older != null; v = v.older) {
+            if (v.older.epoch <= this.minOpenEpoch) {
+                v.older = null;
+                break;
+            }
+        }
+        return versions;
+    }
+
+    // Bulk Operations
+
+    /**
+     * Builds a comparator-ordered list from an unsorted collection with a
+     * parallel sort and a single linking pass, instead of one ordered
+     * insert per element. Equal elements keep their encounter order.
+     *
+     * @return a new list holding the elements of c
+     */
+    public static <E> ConcurrentLinkedList<E> sortedOf(final Comparator<E> comparator,
+                                                       final Collection<? extends E> c) {
+        Objects.requireNonNull(comparator);
+        @SuppressWarnings("unchecked")
+        final E[] a = (E[]) c.toArray();
+        Arrays.parallelSort(a, comparator);
+        final ConcurrentLinkedList<E> list = new ConcurrentLinkedList<>(comparator);
+        // not yet published: plain writes are enough
+        Node<E> pred = list.head;
+        for (final E e : a) {
+            final Node<E> node = new Node<>(e, list.tail);
+            node.prev = pred;
+            pred.next = node;
+            pred = node;
+        }
+        list.hot.tailPrev = pred;
+        list.hot.size = a.length;
+        return list;
+    }
+
+    /**
+     * Moves all elements of another list into this comparator-ordered list
+     * in one merge pass, O(n + m). Elements drained from other are linked
+     * into new nodes, so node handles of other stay with other.
+     *
+     * @throws IllegalArgumentException if other is this list
+     */
+    public void merge(final ConcurrentLinkedList<E> other) {
+        this.requireComparator();
+        if (other == this) {
+            throw new IllegalArgumentException();
+        }
+        final List<E> items = new ArrayList<>(other.size());
+        other.drainTo(items);
+        if (other.comparator != this.comparator) {
+            items.sort(this.comparator);
+        }
+        final Lock lock = this.mutationLock;
+        lock.lock();
+        try {
+            // each element sorts at or after the previous one: resume from it
+            final long now = this.now();
+            Node<E> pred = head;
+            for (final E e : items) {
+                final Node<E> node = this.newNode(e);
+                this.stampWrite(node, now);
+                this.linkFrom(pred, e, node, now);
+                pred = node;
+            }
+            hot.addSize(items.size());
+            this.trim();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Removes all of the elements of this list that satisfy the given
+     * predicate in a single traversal.
+     *
+     * @param filter a predicate which returns {@code true} for elements to be
+     *               removed
+     * @return {@code true} if any elements were removed
+     */
+    @Override
+    public boolean removeIf(final Predicate<? super E> filter) {
+        Objects.requireNonNull(filter);
+        return this.bulkRemove(filter);
+    }
+
+    @Override
+    public boolean removeAll(final Collection<?> c) {
+        Objects.requireNonNull(c);
+        return this.bulkRemove(c::contains);
+    }
+
+    @Override
+    public boolean retainAll(final Collection<?> c) {
+        Objects.requireNonNull(c);
+        return this.bulkRemove(e -> !c.contains(e));
+    }
+
+    /**
+     * Removes all available elements from this list and adds them
+     * to the given collection.
+     *
+     * @return the number of elements transferred
+     */
+    public int drainTo(final Collection<? super E> c) {
+        return this.drainTo(c, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Removes at most the given number of elements from the front of this
+     * list and adds them to the given collection. The drain is not atomic:
+     * each element is removed on its own, so concurrent readers may see
+     * part of the prefix gone, and elements inserted at the front during
+     * the drain may be left behind. Once a node is marked its element
+     * belongs to the drain; the marked chain is then unlinked with one
+     * CAS on {@code head} when nothing was inserted in front of it, and
+     * otherwise left for later traversals to unlink.
+     *
+     * @return the number of elements transferred
+     * @throws IllegalArgumentException if the collection is this list
+     */
+    public int drainTo(final Collection<? super E> c, final int maxElements) {
+        Objects.requireNonNull(c);
+        if (c == this) {
+            throw new IllegalArgumentException();
+        }
+        if (maxElements <= 0) {
+            return 0;
+        }
+        final Lock lock = this.mutationLock;
+        lock.lock();
+        try {
+            // mark the prefix node by node, then try to unlink it all at once
+            final long now = this.now();
+            final Node<E> first = head.rawNext();
+            int count = 0;
+            int marked = 0;
+            Node<E> x = first;
+            while (x != tail && count < maxElements) {
+                final boolean expired = this.isExpired(x, now);
+                final Node<E> succ = this.mark(x);
+                if (succ != null) {
+                    if (!expired) {
+                        c.add(x.item);
+                        count++;
+                    }
+                    marked++;
+                    x = succ;
+                } else {
+                    x = x.rawNext().rawNext();
+                }
+            }
+            if (marked > 0) {
+                hot.addSize(-marked);
+                if (!this.snip(head, first, x)) {
+                    this.helpNext(head, now);
+                }
+            }
+            return count;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Unlinks every node matching the filter in one pass, updating the
+     * size once at the end.
+     */
+    private boolean bulkRemove(final Predicate<? super E> filter) {
+        final Lock lock = this.mutationLock;
+        lock.lock();
+        try {
+            final long now = this.now();
+            int removed = 0;
+            Node<E> pred = head;
+            for (;;) {
+                final Node<E> curr = this.helpNext(pred, now);
+                if (curr == null) {
+                    // pred was removed under us: restart
+                    pred = head;
+                    continue;
+                }
+                if (curr == tail) {
+                    break;
+                }
+                if (filter.test(curr.item)) {
+                    final Node<E> succ = this.mark(curr);
+                    if (succ != null) {
+                        removed++;
+                        this.snip(pred, curr, succ);
+                    }
+                } else {
+                    pred = curr;
+                }
+            }
+            if (removed > 0) {
+                hot.addSize(-removed);
+            }
+            return removed > 0;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Navigation Operations
+
+    /**
+     * Returns the least element in this list greater than or equal to
+     * the given element, or {@code null} if there is no such element.
+     * Only supported in comparator mode.
+     *
+     * @param e the value to match
+     * @return the least element greater than or equal to {@code e},
+     * or {@code null} if there is no such element
+     * @throws UnsupportedOperationException if this list has no comparator
+     */
+    public E ceiling(final E e) {
+        this.requireComparator();
+        final Node<E> node = this.lowerBound(e, true, this.now());
+        return node == tail ? null : node.item;
+    }
+
+    /**
+     * Returns the greatest element in this list less than or equal to
+     * the given element, or {@code null} if there is no such element.
+     * Only supported in comparator mode.
+     *
+     * @param e the value to match
+     * @return the greatest element less than or equal to {@code e},
+     * or {@code null} if there is no such element
+     * @throws UnsupportedOperationException if this list has no comparator
+     */
+    public E floor(final E e) {
+        this.requireComparator();
+        final long now = this.now();
+        Node<E> result = null;
+        for (Node<E> curr = nextOf(head, now); curr != tail; curr = nextOf(curr, now)) {
+            if (this.comparator.compare(curr.item, e) > 0) {
+                break;
+            }
+            result = curr;
+        }
+        return result == null ? null : result.item;
+    }
+
+    /**
+     * Retrieves, but does not remove, the first element, or returns
+     * {@code null} if this list is empty.
+     */
+    public E peekFirst() {
+        return nextOf(head, this.now()).item;
+    }
+
+    /**
+     * Retrieves, but does not remove, the last element, or returns
+     * {@code null} if this list is empty.
+     */
+    public E peekLast() {
+        final long now = this.now();
+        final Node<E> last = hot.tailPrev();
+        if (last != head && last.rawNext() == tail && !this.isExpired(last, now)) {
+            return last.item;
+        }
+        Node<E> x = head;
+        for (Node<E> n; (n = nextOf(x, now)) != tail; x = n) {
+        }
+        return x.item;
+    }
+
+    /**
+     * Retrieves and removes the first element, or returns {@code null}
+     * if this list is empty.
+     */
+    public E pollFirst() {
+        final Lock lock = this.mutationLock;
+        lock.lock();
+        try {
+            final long now = this.now();
+            for (;;) {
+                final Node<E> first = this.helpNext(head, now);
+                if (first == tail) {
+                    return null;
+                }
+                if (this.unlink(head, first)) {
+                    return first.item;
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Retrieves and removes the last element, or returns {@code null}
+     * if this list is empty.
+     */
+    public E pollLast() {
+        final Lock lock = this.mutationLock;
+        lock.lock();
+        try {
+            final Node<E> last = this.removeLast(false);
+            return last == null ? null : last.item;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Unlinks the last live node.
+     *
+     * @param claimed whether the caller already took the node off the size;
+     *                an expired last node then satisfies the claim too
+     * @return the unlinked node, or null if the list is empty
+     */
+    private Node<E> removeLast(final boolean claimed) {
+        final long now = this.now();
+        for (;;) {
+            // fast path: tailPrev and its prev hint still form the last link
+            final Node<E> last = hot.tailPrev();
+            final Node<E> hint;
+            if (last != head && last.rawNext() == tail
+                    && (hint = last.getPrev()) != null && hint.rawNext() == last) {
+                if (this.unlinkLast(hint, last, !claimed) && (claimed || !this.isExpired(last, now))) {
+                    return last;
+                }
+                continue;
+            }
+            Node<E> pred = head;
+            Node<E> curr = this.helpNext(pred, now);
+            if (curr == tail) {
+                return null;
+            }
+            Node<E> succ;
+            while ((succ = this.helpNext(curr, now)) != tail && succ != null) {
+                pred = curr;
+                curr = succ;
+            }
+            if (succ == tail && this.unlinkLast(pred, curr, !claimed)) {
+                return curr;
+            }
+        }
+    }
+
+    /**
+     * Removes node, found behind pred, only while it is still the last
+     * node: the marker replaces tail itself, so an element linked behind
+     * node in the meantime makes this fail rather than remove a node that
+     * is no longer last.
+     *
+     * @param count whether to take node off the size
+     * @return false if node was removed or is no longer last
+     */
+    private boolean unlinkLast(final Node<E> pred, final Node<E> node, final boolean count) {
+        if (!this.casNext(node, tail, new Marker<>(tail, this.epoch))) {
+            return false;
+        }
+        if (count) {
+            hot.addSize(-1);
+        }
+        this.snip(pred, node, tail);
+        return true;
+    }
+
+    /**
+     * Returns a view of the portion of this list whose elements are less
+     * than (or equal to, if {@code inclusive} is true) {@code toElement}.
+     * The view is backed by this list and its iterators are weakly
+     * consistent.
+     */
+    public Collection<E> headView(final E toElement, final boolean inclusive) {
+        this.requireComparator();
+        return new RangeView(true, null, false, false, toElement, inclusive);
+    }
+
+    /**
+     * Returns a view of the portion of this list whose elements are greater
+     * than (or equal to, if {@code inclusive} is true) {@code fromElement}.
+     * The view is backed by this list and its iterators are weakly
+     * consistent.
+     */
+    public Collection<E> tailView(final E fromElement, final boolean inclusive) {
+        this.requireComparator();
+        return new RangeView(false, fromElement, inclusive, true, null, false);
+    }
+
+    /**
+     * Returns a view of the portion of this list whose elements range from
+     * {@code fromElement} to {@code toElement}. The view is backed by this
+     * list and its iterators are weakly consistent.
+     *
+     * @throws IllegalArgumentException if {@code fromElement} is greater
+     *                                  than {@code toElement}
+     */
+    public Collection<E> subRange(final E fromElement, final boolean fromInclusive,
+                                  final E toElement, final boolean toInclusive) {
+        this.requireComparator();
+        if (this.comparator.compare(fromElement, toElement) > 0) {
+            throw new IllegalArgumentException("fromElement > toElement");
         }
-        return false;
+        return new RangeView(false, fromElement, fromInclusive, false, toElement, toInclusive);
     }
 
     /**
-     * Links e as last element.
+     * Returns the first node whose item is greater than (or equal to, if
+     * {@code inclusive} is true) e, or tail if there is none.
      */
-    private Node<E> linkSort(final E e) {
-        Node<E> pred, curr, succ;
-        // initialization
-        pred = head;
-        curr = pred.next;
-        // traverse linked list
+    private Node<E> lowerBound(final E e, final boolean inclusive, final long now) {
+        Node<E> curr = nextOf(head, now);
         while (curr != tail) {
-            succ = curr.next;
-            int compare = this.comparator.compare(e, curr.item);
-            // continue searching
-            if (compare < 0) {
-                // locate a window: do insert
-                Node<E> node = new Node<>(e, curr);
-                pred.casNext(curr, node);
-                atomicSize.incrementAndGet();
-                return node;
-            } else {
-                pred = curr;
-                curr = succ;
+            final int compare = this.comparator.compare(curr.item, e);
+            if (compare > 0 || (compare == 0 && inclusive)) {
+                return curr;
             }
+            curr = nextOf(curr, now);
+        }
+        return tail;
+    }
+
+    private void requireComparator() {
+        if (Objects.isNull(this.comparator)) {
+            throw new UnsupportedOperationException("comparator required");
         }
-        Node<E> node = new Node<>(e, curr);
-        pred.casNext(curr, node);
-        tailPrev = node;
-        atomicSize.incrementAndGet();
-        return node;
     }
 
+    // Snapshot Operations
+
     /**
-     * Links e as last element.
+     * Returns an iterator over the elements of this list exactly as they
+     * were when the snapshot was opened, regardless of later mutations.
+     * While snapshots are open each mutation keeps the successor it
+     * replaces; writers drop the versions no open snapshot needs any more,
+     * and the rest are dropped once the last snapshot is closed.
+     * The snapshot closes itself when exhausted.
+     *
+     * @return an open snapshot iterator
+     * @throws UnsupportedOperationException if this list was not constructed
+     *                                       with snapshots enabled
      */
-    private void linkSort(final E e, Node<E> node) {
-        Node<E> pred, curr, succ;
-        // initialization
-        pred = head;
-        curr = pred.next;
-        // traverse linked list
-        while (curr != tail) {
-            succ = curr.next;
-            int compare = this.comparator.compare(e, curr.item);
-            // continue searching
-            if (compare < 0) {
-                // locate a window: do insert
-                node.next = curr;
-                pred.casNext(curr, node);
-                atomicSize.incrementAndGet();
-                return;
+    public SnapshotItr snapshot() {
+        if (this.gate == null) {
+            throw new UnsupportedOperationException("snapshots not enabled");
+        }
+        final Lock lock = this.gate.writeLock();
+        lock.lock();
+        try {
+            if (this.snapshots++ == 0) {
+                this.minOpenEpoch = this.epoch;
+            }
+            this.openEpochs.add(this.epoch);
+            return new SnapshotItr(this.epoch++);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void closeSnapshot(final long epoch) {
+        final Lock lock = this.gate.writeLock();
+        lock.lock();
+        try {
+            this.openEpochs.remove(epoch);
+            if (--this.snapshots == 0) {
+                for (Node<E> x = head; x != tail; x = x.rawNext()) {
+                    x.setVersions(null);
+                }
             } else {
-                pred = curr;
-                curr = succ;
+                this.minOpenEpoch = this.openEpochs.first();
             }
+        } finally {
+            lock.unlock();
         }
-        node.next = curr;
-        pred.casNext(curr, node);
-        tailPrev = node;
-        atomicSize.incrementAndGet();
+    }
+
+    // Traversal Operations
+
+    /**
+     * Returns a cursor positioned before the first element. Unlike an
+     * iterator it can be {@link Cursor#reset() reset} and reused, so a hot
+     * loop can keep one cursor instead of allocating per scan.
+     *
+     * @return a new cursor over the nodes of this list
+     */
+    public Cursor cursor() {
+        return new Cursor();
     }
 
     /**
-     * Links e as last element.
+     * Visits the nodes in order until the visitor returns {@code false}.
+     * Allocates nothing and, in expiry mode, does not count as an access.
+     *
+     * @return the number of nodes visited
      */
-    private Node<E> linkLast(final E e) {
-        final Node<E> pred = tailPrev;
-        final Node<E> node = new Node<>(e, tail);
-        pred.casNext(tail, node);
-        tailPrev = node;
-        atomicSize.incrementAndGet();
-        return node;
+    public int forEachNode(final NodeVisitor<E> visitor) {
+        Objects.requireNonNull(visitor);
+        final long now = this.now();
+        int visited = 0;
+        for (Node<E> x = nextOf(head, now); x != tail; x = nextOf(x, now)) {
+            visited++;
+            if (!visitor.visit(x)) {
+                break;
+            }
+        }
+        return visited;
     }
 
     /**
-     * Links e as last element.
+     * Returns the first node the matcher accepts for the given key. Passing
+     * the key separately lets a non-capturing lambda search by a primitive
+     * value, so the search allocates nothing.
+     *
+     * @return the matching node, or null if there is none
      */
-    private void linkLast(final E e, Node<E> node) {
-        node.next = tail;
-        final Node<E> pred = tailPrev;
-        pred.casNext(tail, node);
-        tailPrev = node;
-        atomicSize.incrementAndGet();
+    public Node<E> searchNode(final long key, final NodeMatcher<E> matcher) {
+        Objects.requireNonNull(matcher);
+        final long now = this.now();
+        for (Node<E> x = nextOf(head, now); x != tail; x = nextOf(x, now)) {
+            if (matcher.matches(x, key)) {
+                return x;
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public void forEach(final Consumer<? super E> action) {
+        Objects.requireNonNull(action);
+        final long now = this.now();
+        for (Node<E> x = nextOf(head, now); x != tail; x = nextOf(x, now)) {
+            action.accept(x.item);
+        }
     }
 
     // Positional Access Operations
@@ -306,7 +1296,14 @@ public class ConcurrentLinkedList<E> extends AbstractSequentialList<E> implement
      */
     public E get(int index) {
         checkElementIndex(index);
-        return node(index).item;
+        final long now = this.now();
+        final Node<E> node = node(index, now);
+        if (node == tail) {
+            // fewer live elements than counted: some expired or were removed
+            throw new IndexOutOfBoundsException(outOfBoundsMsg(index));
+        }
+        this.touch(node, now);
+        return node.item;
     }
 
     /**
@@ -320,7 +1317,10 @@ public class ConcurrentLinkedList<E> extends AbstractSequentialList<E> implement
      */
     public E remove(int index) {
         checkElementIndex(index);
-        Node<E> node = node(index);
+        Node<E> node = node(index, this.now());
+        if (node == tail) {
+            throw new IndexOutOfBoundsException(outOfBoundsMsg(index));
+        }
         nodeRemove(node);
         return node.item;
     }
@@ -329,7 +1329,7 @@ public class ConcurrentLinkedList<E> extends AbstractSequentialList<E> implement
      * Tells if the argument is the index of an existing element.
      */
     private boolean isElementIndex(int index) {
-        return index >= 0 && index < atomicSize.get();
+        return index >= 0 && index < size();
     }
 
     /**
@@ -337,7 +1337,7 @@ public class ConcurrentLinkedList<E> extends AbstractSequentialList<E> implement
      * iterator or an add operation.
      */
     private boolean isPositionIndex(int index) {
-        return index >= 0 && index <= atomicSize.get();
+        return index >= 0 && index <= size();
     }
 
     /**
@@ -346,7 +1346,7 @@ public class ConcurrentLinkedList<E> extends AbstractSequentialList<E> implement
      * this "outlining" performs best with both server and client VMs.
      */
     private String outOfBoundsMsg(int index) {
-        return "Index: "+index+", Size: " + atomicSize.get();
+        return "Index: "+index+", Size: " + size();
     }
 
     private void checkElementIndex(int index) {
@@ -362,18 +1362,23 @@ public class ConcurrentLinkedList<E> extends AbstractSequentialList<E> implement
     }
 
     /**
-     * Returns the (non-null) Node at the specified element index.
+     * Returns the (non-null) Node at the specified element index, or tail
+     * if fewer live elements are left than the size counts.
      */
-    Node<E> node(int index) {
-        Node<E> x = head.next;
-        for (int i = 0; i < index; i++) {
-            x = x.next;
+    Node<E> node(int index, final long now) {
+        Node<E> x = nextOf(head, now);
+        for (int i = 0; i < index && x != tail; i++) {
+            x = nextOf(x, now);
         }
         return x;
     }
 
     private class ListItr implements ListIterator<E> {
-        private Node<E> next = head.next;
+        private final long now = now();
+        private Node<E> next = nextOf(head, this.now);
+        private Node<E> prev = head;
+        private Node<E> lastReturned;
+        private Node<E> lastPred;
 
         ListItr() {
         }
@@ -389,9 +1394,11 @@ public class ConcurrentLinkedList<E> extends AbstractSequentialList<E> implement
                 throw new NoSuchElementException();
             }
 
-            E item = this.next.item;
-            this.next = this.next.next;
-            return item;
+            this.lastPred = this.prev;
+            this.lastReturned = this.next;
+            this.prev = this.next;
+            this.next = nextOf(this.next, this.now);
+            return this.lastReturned.item;
         }
 
         @Override
@@ -416,12 +1423,27 @@ public class ConcurrentLinkedList<E> extends AbstractSequentialList<E> implement
 
         @Override
         public void remove() {
-            nodeRemove(this.next);
+            final Node<E> node = this.lastReturned;
+            if (node == null) {
+                throw new IllegalStateException();
+            }
+            final Lock lock = mutationLock;
+            lock.lock();
+            try {
+                unlink(this.lastPred, node);
+                this.prev = this.lastPred;
+                this.lastReturned = null;
+            } finally {
+                lock.unlock();
+            }
         }
 
         @Override
         public void set(final E e) {
-            this.next.item = e;
+            if (this.lastReturned == null) {
+                throw new IllegalStateException();
+            }
+            this.lastReturned.item = e;
         }
 
         @Override
@@ -438,16 +1460,424 @@ public class ConcurrentLinkedList<E> extends AbstractSequentialList<E> implement
         }
     }
 
+    /**
+     * Weakly consistent range view over a comparator-ordered list.
+     */
+    private final class RangeView extends AbstractCollection<E> {
+        private final boolean fromStart;
+        private final E lo;
+        private final boolean loInclusive;
+        private final boolean toEnd;
+        private final E hi;
+        private final boolean hiInclusive;
+
+        RangeView(final boolean fromStart, final E lo, final boolean loInclusive,
+                  final boolean toEnd, final E hi, final boolean hiInclusive) {
+            this.fromStart = fromStart;
+            this.lo = lo;
+            this.loInclusive = loInclusive;
+            this.toEnd = toEnd;
+            this.hi = hi;
+            this.hiInclusive = hiInclusive;
+        }
+
+        private boolean tooHigh(final Node<E> node) {
+            if (this.toEnd || node == tail) {
+                return false;
+            }
+            final int compare = comparator.compare(node.item, this.hi);
+            return compare > 0 || (compare == 0 && !this.hiInclusive);
+        }
+
+        private Node<E> first(final long now) {
+            final Node<E> node = this.fromStart ? nextOf(head, now) : lowerBound(this.lo, this.loInclusive, now);
+            return this.tooHigh(node) ? tail : node;
+        }
+
+        @Override
+        public Iterator<E> iterator() {
+            return new RangeItr();
+        }
+
+        @Override
+        public boolean isEmpty() {
+            return this.first(now()) == tail;
+        }
+
+        @Override
+        public int size() {
+            int count = 0;
+            for (Iterator<E> it = this.iterator(); it.hasNext(); it.next()) {
+                count++;
+            }
+            return count;
+        }
+
+        private final class RangeItr implements Iterator<E> {
+            private final long now = now();
+            private Node<E> next = first(this.now);
+            private Node<E> lastReturned;
+
+            @Override
+            public boolean hasNext() {
+                return this.next != tail;
+            }
+
+            @Override
+            public E next() {
+                if (!this.hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                this.lastReturned = this.next;
+                final Node<E> succ = nextOf(this.next, this.now);
+                this.next = tooHigh(succ) ? tail : succ;
+                return this.lastReturned.item;
+            }
+
+            @Override
+            public void remove() {
+                if (this.lastReturned == null) {
+                    throw new IllegalStateException();
+                }
+                nodeRemove(this.lastReturned);
+                this.lastReturned = null;
+            }
+        }
+    }
+
+    /**
+     * Iterator over the list as of a fixed epoch.
+     */
+    public final class SnapshotItr implements Iterator<E>, AutoCloseable {
+        private final long epoch;
+        private Node<E> next;
+        private boolean closed;
+
+        SnapshotItr(final long epoch) {
+            this.epoch = epoch;
+            this.next = head.nextAt(epoch);
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (this.next != tail) {
+                return true;
+            }
+            this.close();
+            return false;
+        }
+
+        @Override
+        public E next() {
+            if (this.next == tail) {
+                throw new NoSuchElementException();
+            }
+            final E item = this.next.item;
+            this.next = this.next.nextAt(this.epoch);
+            return item;
+        }
+
+        @Override
+        public void close() {
+            if (!this.closed) {
+                this.closed = true;
+                this.next = tail;
+                closeSnapshot(this.epoch);
+            }
+        }
+    }
+
+    /**
+     * A resettable, weakly consistent position over the nodes of the list.
+     * Not thread-safe; each thread should keep its own.
+     */
+    public final class Cursor {
+        private Node<E> node = head;
+        /** Clock read for expiry checks, taken again on reset. */
+        private long now = now();
+
+        Cursor() {
+        }
+
+        /**
+         * Moves to the next node.
+         *
+         * @return {@code false} if the end of the list was reached
+         */
+        public boolean advance() {
+            if (this.node != tail) {
+                this.node = nextOf(this.node, this.now);
+            }
+            return this.node != tail;
+        }
+
+        /**
+         * Returns the current node.
+         *
+         * @throws NoSuchElementException if the cursor is before the first
+         *                                or past the last node
+         */
+        public Node<E> node() {
+            if (this.node == head || this.node == tail) {
+                throw new NoSuchElementException();
+            }
+            return this.node;
+        }
+
+        /**
+         * Returns the element of the current node.
+         *
+         * @throws NoSuchElementException if there is no current node
+         */
+        public E item() {
+            return this.node().item;
+        }
+
+        /**
+         * Moves the cursor back before the first element.
+         *
+         * @return this cursor
+         */
+        public Cursor reset() {
+            this.node = head;
+            this.now = now();
+            return this;
+        }
+    }
+
+    /**
+     * Receives nodes from {@link #forEachNode}.
+     */
+    @FunctionalInterface
+    public interface NodeVisitor<E> {
+        /**
+         * @return {@code false} to stop the traversal
+         */
+        boolean visit(Node<E> node);
+    }
+
+    /**
+     * Tests nodes for {@link #searchNode} against a primitive key.
+     */
+    @FunctionalInterface
+    public interface NodeMatcher<E> {
+        boolean matches(Node<E> node, long key);
+    }
+
+    /**
+     * A successor replaced while snapshots were open.
+     */
+    static final class Version<E> {
+        final Node<E> next;
+        final long epoch;
+        /** Cut by writers once no open snapshot reads past it. */
+        Version<E> older;
+
+        Version(final Node<E> next, final long epoch, final Version<E> older) {
+            this.next = next;
+            this.epoch = epoch;
+            this.older = older;
+        }
+    }
+
+    /**
+     * Node of a list with snapshots enabled.
+     */
+    static final class VersionedNode<E> extends Node<E> {
+        private volatile Version<E> versions;
+
+        VersionedNode(final E item) {
+            super(item, null);
+        }
+
+        @Override
+        Version<E> getVersions() {
+            return this.versions;
+        }
+
+        @Override
+        void setVersions(final Version<E> versions) {
+            this.versions = versions;
+        }
+    }
+
+    /**
+     * Node of a list in expiry mode.
+     */
+    static class TimedNode<E> extends Node<E> {
+        /** Deadline set on write, used when expiring after write. */
+        long writeDeadline;
+
+        /** System.nanoTime() at or after which the node is expired. */
+        volatile long expiresAt;
+
+        TimedNode(final E item) {
+            super(item, null);
+        }
+    }
+
+    /**
+     * Node of a list in expiry mode with snapshots enabled.
+     */
+    static final class TimedVersionedNode<E> extends TimedNode<E> {
+        private volatile Version<E> versions;
+
+        TimedVersionedNode(final E item) {
+            super(item);
+        }
+
+        @Override
+        Version<E> getVersions() {
+            return this.versions;
+        }
+
+        @Override
+        void setVersions(final Version<E> versions) {
+            this.versions = versions;
+        }
+    }
+
+    /**
+     * Appended to a node to mark it removed. Stamped with the epoch of the
+     * removal so that older snapshots still see the node.
+     */
+    static final class Marker<E> extends Node<E> {
+        final long epoch;
+
+        Marker(final Node<E> next, final long epoch) {
+            super(null, next);
+            this.epoch = epoch;
+        }
+    }
+
+    /**
+     * Lock used by mutations when snapshots are disabled.
+     */
+    private static final class NoLock implements Lock {
+        static final NoLock INSTANCE = new NoLock();
+
+        @Override
+        public void lock() {
+        }
+
+        @Override
+        public void lockInterruptibly() {
+        }
+
+        @Override
+        public boolean tryLock() {
+            return true;
+        }
+
+        @Override
+        public boolean tryLock(final long time, final java.util.concurrent.TimeUnit unit) {
+            return true;
+        }
+
+        @Override
+        public void unlock() {
+        }
+
+        @Override
+        public Condition newCondition() {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    /*
+     * Padding for the write-hot fields. The JVM lays out superclass fields
+     * first, so the pads end up on both sides of HotFields' fields. Bytes
+     * rather than longs: since JDK 15 a subclass field may fill the gap a
+     * superclass leaves after the object header, which long pads leave
+     * open, while bytes fill it themselves.
+     */
+
+    static class HotLhsPad {
+        byte b000, b001, b002, b003, b004, b005, b006, b007, b010, b011, b012, b013, b014, b015, b016, b017;
+        byte b020, b021, b022, b023, b024, b025, b026, b027, b030, b031, b032, b033, b034, b035, b036, b037;
+        byte b040, b041, b042, b043, b044, b045, b046, b047, b050, b051, b052, b053, b054, b055, b056, b057;
+        byte b060, b061, b062, b063, b064, b065, b066, b067, b070, b071, b072, b073, b074, b075, b076, b077;
+        byte b100, b101, b102, b103, b104, b105, b106, b107, b110, b111, b112, b113, b114, b115, b116, b117;
+        byte b120, b121, b122, b123, b124, b125, b126, b127, b130, b131, b132, b133, b134, b135, b136, b137;
+        byte b140, b141, b142, b143, b144, b145, b146, b147, b150, b151, b152, b153, b154, b155, b156, b157;
+        byte b160, b161, b162, b163, b164, b165, b166, b167, b170, b171, b172, b173, b174, b175, b176, b177;
+    }
+
+    static class HotFields<E> extends HotLhsPad {
+        private static final VarHandle TAIL_PREV;
+        private static final VarHandle SIZE;
+
+        static {
+            try {
+                final MethodHandles.Lookup l = MethodHandles.lookup();
+                TAIL_PREV = l.findVarHandle(HotFields.class, "tailPrev", Node.class);
+                SIZE = l.findVarHandle(HotFields.class, "size", int.class);
+            } catch (ReflectiveOperationException e) {
+                throw new ExceptionInInitializerError(e);
+            }
+        }
+
+        /** Last node, a hint maintained by appends and removals. */
+        Node<E> tailPrev;
+
+        int size;
+
+        @SuppressWarnings("unchecked")
+        final Node<E> tailPrev() {
+            return (Node<E>) TAIL_PREV.getAcquire(this);
+        }
+
+        final void setTailPrev(final Node<E> node) {
+            TAIL_PREV.setRelease(this, node);
+        }
+
+        final int size() {
+            return (int) SIZE.getAcquire(this);
+        }
+
+        final void addSize(final int delta) {
+            SIZE.getAndAddRelease(this, delta);
+        }
+
+        final boolean casSize(final int expect, final int update) {
+            return SIZE.compareAndSet(this, expect, update);
+        }
+    }
+
+    static final class Hot<E> extends HotFields<E> {
+        byte b200, b201, b202, b203, b204, b205, b206, b207, b210, b211, b212, b213, b214, b215, b216, b217;
+        byte b220, b221, b222, b223, b224, b225, b226, b227, b230, b231, b232, b233, b234, b235, b236, b237;
+        byte b240, b241, b242, b243, b244, b245, b246, b247, b250, b251, b252, b253, b254, b255, b256, b257;
+        byte b260, b261, b262, b263, b264, b265, b266, b267, b270, b271, b272, b273, b274, b275, b276, b277;
+        byte b300, b301, b302, b303, b304, b305, b306, b307, b310, b311, b312, b313, b314, b315, b316, b317;
+        byte b320, b321, b322, b323, b324, b325, b326, b327, b330, b331, b332, b333, b334, b335, b336, b337;
+        byte b340, b341, b342, b343, b344, b345, b346, b347, b350, b351, b352, b353, b354, b355, b356, b357;
+        byte b360, b361, b362, b363, b364, b365, b366, b367, b370, b371, b372, b373, b374, b375, b376, b377;
+    }
+
     /**
      * Internal Node<E> class.
      */
     public static class Node<E> {
         protected E item;
 
-        protected volatile Node<E> next;
+        protected Node<E> next;
 
-        private static final AtomicReferenceFieldUpdater<Node, Node> nextUpdater
-                = AtomicReferenceFieldUpdater.newUpdater(Node.class, Node.class, "next");
+        /** Predecessor hint, validated against next before use. */
+        private Node<E> prev;
+
+        private static final VarHandle NEXT;
+        private static final VarHandle PREV;
+
+        static {
+            try {
+                final MethodHandles.Lookup l = MethodHandles.lookup();
+                NEXT = l.findVarHandle(Node.class, "next", Node.class);
+                PREV = l.findVarHandle(Node.class, "prev", Node.class);
+            } catch (ReflectiveOperationException e) {
+                throw new ExceptionInInitializerError(e);
+            }
+        }
 
         Node(E item, Node<E> next) {
             this.item = item;
@@ -459,7 +1889,86 @@ public class ConcurrentLinkedList<E> extends AbstractSequentialList<E> implement
         }
 
         private boolean casNext(Node<E> o, Node<E> n) {
-            return nextUpdater.compareAndSet(this, o, n);
+            return NEXT.compareAndSet(this, o, n);
+        }
+
+        @SuppressWarnings("unchecked")
+        private Node<E> rawNext() {
+            return (Node<E>) NEXT.getAcquire(this);
+        }
+
+        @SuppressWarnings("unchecked")
+        private Node<E> getPrev() {
+            return (Node<E>) PREV.getAcquire(this);
+        }
+
+        private void setPrev(Node<E> p) {
+            PREV.setRelease(this, p);
+        }
+
+        /**
+         * Returns the next live node, skipping markers and removed nodes
+         * that are not yet unlinked.
+         */
+        private Node<E> getNext() {
+            Node<E> n = this.rawNext();
+            if (n instanceof Marker) {
+                n = n.rawNext();
+            }
+            Node<E> s;
+            while (n != null && (s = n.rawNext()) instanceof Marker) {
+                n = s.rawNext();
+            }
+            return n;
+        }
+
+        /**
+         * Release store: cheaper than a volatile write, and enough for
+         * readers that reach this node through an acquire load.
+         */
+        private void lazySetNext(Node<E> n) {
+            NEXT.setRelease(this, n);
+        }
+
+        /**
+         * Returns the successor as seen by a snapshot opened at the given epoch.
+         */
+        Node<E> nextAt(final long epoch) {
+            Node<E> n = this.rawNextAt(epoch);
+            for (;;) {
+                if (n instanceof Marker) {
+                    n = n.rawNext();
+                    continue;
+                }
+                final Node<E> s;
+                if (n != null && (s = n.rawNextAt(epoch)) instanceof Marker
+                        && ((Marker<E>) s).epoch <= epoch) {
+                    // removed before the snapshot was opened
+                    n = s.rawNext();
+                    continue;
+                }
+                return n;
+            }
+        }
+
+        private Node<E> rawNextAt(final long epoch) {
+            // read next before versions: writers publish them the other way round
+            Node<E> result = this.rawNext();
+            for (Version<E> v = this.getVersions(); v != null && v.epoch > epoch; v = v.older) {
+                result = v.next;
+            }
+            return result;
+        }
+
+        /**
+         * Returns the successors replaced after open snapshots, newest
+         * first. Only nodes of lists with snapshots enabled keep them.
+         */
+        Version<E> getVersions() {
+            return null;
+        }
+
+        void setVersions(final Version<E> versions) {
         }
 
         public E getItem() {
@@ -483,12 +1992,18 @@ public class ConcurrentLinkedList<E> extends AbstractSequentialList<E> implement
      */
     @Override
     public Object[] toArray() {
-        final Object[] result = new Object[this.atomicSize.get()];
+        // size() is only a hint: it counts expired elements not yet
+        // unlinked and races with concurrent writers
+        Object[] result = new Object[this.size()];
+        final long now = this.now();
         int i = 0;
-        for (Node<E> x = this.head.next; x != tail; x = x.next) {
+        for (Node<E> x = nextOf(this.head, now); x != tail; x = nextOf(x, now)) {
+            if (i == result.length) {
+                result = Arrays.copyOf(result, i + (i >> 1) + 1);
+            }
             result[i++] = x.item;
         }
-        return result;
+        return i == result.length ? result : Arrays.copyOf(result, i);
     }
 
     /**
@@ -531,16 +2046,12 @@ public class ConcurrentLinkedList<E> extends AbstractSequentialList<E> implement
      */
     @Override
     public <T> T[] toArray(T[] a) {
-        int size = atomicSize.get();
+        final Object[] elements = this.toArray();
+        final int size = elements.length;
         if (a.length < size) {
-            a = (T[]) java.lang.reflect.Array.newInstance(
-                    a.getClass().getComponentType(), size);
-        }
-        int i = 0;
-        final Object[] result = a;
-        for (Node<E> x = this.head.next; x != null; x = x.next) {
-            result[i++] = x.item;
+            return (T[]) Arrays.copyOf(elements, size, a.getClass());
         }
+        System.arraycopy(elements, 0, a, 0, size);
 
         if (a.length > size) {
             a[size] = null;
@@ -555,8 +2066,9 @@ public class ConcurrentLinkedList<E> extends AbstractSequentialList<E> implement
      * list.
      *
      * <p>The {@code Spliterator} reports {@link Spliterator#SIZED} and
-     * {@link Spliterator#ORDERED}.  Overriding implementations should document
-     * the reporting of additional characteristic values.
+     * {@link Spliterator#ORDERED}, and only the latter in expiry mode.
+     * Overriding implementations should document the reporting of additional
+     * characteristic values.
      *
      * @return a {@code Spliterator} over the elements in this list
      * @implNote The {@code Spliterator} additionally reports {@link Spliterator#SUBSIZED}
@@ -579,6 +2091,7 @@ public class ConcurrentLinkedList<E> extends AbstractSequentialList<E> implement
         int est;              // size estimate; -1 until first needed
         int expectedModCount; // initialized when est set
         int batch;            // batch size for splits
+        long now;             // clock for expiry checks; read when est set
 
         LLSpliterator(final ConcurrentLinkedList<E> list, final int est, final int expectedModCount) {
             this.list = list;
@@ -594,8 +2107,9 @@ public class ConcurrentLinkedList<E> extends AbstractSequentialList<E> implement
                     s = this.est = 0;
                 } else {
                     this.expectedModCount = lst.modCount;
-                    this.current = lst.head.next;
-                    s = this.est = lst.atomicSize.get();
+                    this.now = lst.now();
+                    this.current = this.succ(lst.head);
+                    s = this.est = lst.size();
                 }
             }
             return s;
@@ -622,7 +2136,7 @@ public class ConcurrentLinkedList<E> extends AbstractSequentialList<E> implement
                 int j = 0;
                 do {
                     a[j++] = p.item;
-                } while ((p = p.next) != null && j < n);
+                } while ((p = this.succ(p)) != null && j < n);
                 this.current = p;
                 this.batch = j;
                 this.est = s - j;
@@ -643,7 +2157,7 @@ public class ConcurrentLinkedList<E> extends AbstractSequentialList<E> implement
                 this.est = 0;
                 do {
                     final E e = p.item;
-                    p = p.next;
+                    p = this.succ(p);
                     action.accept(e);
                 } while (p != null && --n > 0);
             }
@@ -661,7 +2175,7 @@ public class ConcurrentLinkedList<E> extends AbstractSequentialList<E> implement
             if (this.getEst() > 0 && (p = this.current) != null) {
                 --this.est;
                 final E e = p.item;
-                this.current = p.next;
+                this.current = this.succ(p);
                 action.accept(e);
                 if (this.list.modCount != this.expectedModCount) {
                     throw new ConcurrentModificationException();
@@ -671,8 +2185,21 @@ public class ConcurrentLinkedList<E> extends AbstractSequentialList<E> implement
             return false;
         }
 
+        /**
+         * Returns the node after p, or null at the end of the list, which an
+         * expiring list may reach before est runs out.
+         */
+        private Node<E> succ(final Node<E> p) {
+            final Node<E> n = this.list.nextOf(p, this.now);
+            return n == this.list.tail ? null : n;
+        }
+
         @Override
         public int characteristics() {
+            if (this.list != null && this.list.expiring) {
+                // the size counts expired elements not yet unlinked
+                return Spliterator.ORDERED;
+            }
             return Spliterator.ORDERED | Spliterator.SIZED | Spliterator.SUBSIZED;
         }
     }
@@ -798,7 +2325,7 @@ public class ConcurrentLinkedList<E> extends AbstractSequentialList<E> implement
         }
 
         @Override
-        public void nodeUpdate(final Node<E> node) {
+        public Node<E> nodeUpdate(final Node<E> node) {
             throw new UnsupportedOperationException();
         }
 
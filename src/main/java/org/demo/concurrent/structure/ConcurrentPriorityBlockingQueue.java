@@ -0,0 +1,228 @@
+package org.demo.concurrent.structure;
+
+import java.util.*;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * {@link BlockingQueue} backed by a comparator-ordered
+ * {@link ConcurrentLinkedList}, unbounded unless the list is a top-K list.
+ * Polling is lock-free; waiting consumers park with {@link LockSupport}
+ * instead of holding a monitor, so they do not pin virtual threads.
+ */
+public class ConcurrentPriorityBlockingQueue<E> extends AbstractQueue<E> implements BlockingQueue<E> {
+
+    private final ConcurrentLinkedList<E> list;
+
+    /** Parked consumers, woken one per offered element. */
+    private final ConcurrentLinkedQueue<Thread> waiters = new ConcurrentLinkedQueue<>();
+
+    /**
+     * Constructs an empty queue ordered by the given comparator, or in
+     * insertion order if it is null.
+     */
+    public ConcurrentPriorityBlockingQueue(final Comparator<E> comparator) {
+        this(new ConcurrentLinkedList<>(comparator));
+    }
+
+    /**
+     * Constructs a queue view over an existing list. Elements added to the
+     * list directly do not wake waiting consumers.
+     */
+    public ConcurrentPriorityBlockingQueue(final ConcurrentLinkedList<E> list) {
+        this.list = Objects.requireNonNull(list);
+    }
+
+    /**
+     * Inserts the element in priority order.
+     *
+     * @return {@code false} only if the backing list is a full top-K list
+     * that rejected the element
+     */
+    @Override
+    public boolean offer(final E e) {
+        Objects.requireNonNull(e);
+        if (this.list.nodeAdd(e) == null) {
+            return false;
+        }
+        this.signal();
+        return true;
+    }
+
+    /**
+     * Inserts the element; never blocks, as a full top-K list evicts or
+     * rejects instead of waiting for space.
+     */
+    @Override
+    public boolean offer(final E e, final long timeout, final TimeUnit unit) {
+        return this.offer(e);
+    }
+
+    /**
+     * Inserts the element; never blocks. A full top-K list may drop it,
+     * see {@link #offer(Object)}.
+     */
+    @Override
+    public void put(final E e) {
+        this.offer(e);
+    }
+
+    @Override
+    public E poll() {
+        return this.list.pollFirst();
+    }
+
+    @Override
+    public E poll(final long timeout, final TimeUnit unit) throws InterruptedException {
+        return this.await(true, unit.toNanos(timeout));
+    }
+
+    @Override
+    public E take() throws InterruptedException {
+        return this.await(false, 0L);
+    }
+
+    @Override
+    public E peek() {
+        return this.list.peekFirst();
+    }
+
+    /**
+     * Removes at most {@code maxElements} head elements without blocking.
+     *
+     * @return the removed elements in priority order, possibly empty
+     * @throws IllegalArgumentException if maxElements is not positive
+     */
+    public List<E> pollBatch(final int maxElements) {
+        if (maxElements <= 0) {
+            throw new IllegalArgumentException();
+        }
+        final List<E> batch = new ArrayList<>(Math.min(maxElements, Math.max(this.size(), 1)));
+        this.list.drainTo(batch, maxElements);
+        return batch;
+    }
+
+    /**
+     * Waits until an element is available, then removes it and up to
+     * {@code maxElements - 1} further head elements.
+     *
+     * @return the removed elements in priority order, never empty
+     * @throws InterruptedException     if interrupted while waiting
+     * @throws IllegalArgumentException if maxElements is not positive
+     */
+    public List<E> takeBatch(final int maxElements) throws InterruptedException {
+        if (maxElements <= 0) {
+            throw new IllegalArgumentException();
+        }
+        final List<E> batch = new ArrayList<>(Math.min(maxElements, Math.max(this.size(), 1)));
+        batch.add(this.take());
+        this.list.drainTo(batch, maxElements - 1);
+        return batch;
+    }
+
+    @Override
+    public int drainTo(final Collection<? super E> c) {
+        return this.drainTo(c, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public int drainTo(final Collection<? super E> c, final int maxElements) {
+        if (c == this) {
+            throw new IllegalArgumentException();
+        }
+        return this.list.drainTo(c, maxElements);
+    }
+
+    /**
+     * Returns {@code Integer.MAX_VALUE}, or for a top-K list the number of
+     * elements it takes before it starts evicting or rejecting.
+     */
+    @Override
+    public int remainingCapacity() {
+        final int capacity = this.list.capacity();
+        return capacity == Integer.MAX_VALUE ? capacity : Math.max(capacity - this.size(), 0);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public boolean remove(final Object o) {
+        return o != null && this.list.nodeRemove((E) o) != null;
+    }
+
+    @Override
+    public boolean contains(final Object o) {
+        return o != null && this.list.contains(o);
+    }
+
+    @Override
+    public Iterator<E> iterator() {
+        return this.list.iterator();
+    }
+
+    @Override
+    public int size() {
+        return this.list.size();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return this.list.isEmpty();
+    }
+
+    /**
+     * Polls, parking between attempts until an element arrives.
+     */
+    private E await(final boolean timed, long nanos) throws InterruptedException {
+        E e = this.poll();
+        if (e != null) {
+            return e;
+        }
+        final Thread current = Thread.currentThread();
+        final long deadline = timed ? System.nanoTime() + nanos : 0L;
+        for (;;) {
+            this.waiters.add(current);
+            // re-check after publishing ourselves, so an offer cannot slip in unseen
+            if ((e = this.poll()) != null) {
+                this.cancel(current);
+                return e;
+            }
+            if (timed) {
+                if (nanos <= 0L) {
+                    this.cancel(current);
+                    return null;
+                }
+                LockSupport.parkNanos(this, nanos);
+                nanos = deadline - System.nanoTime();
+            } else {
+                LockSupport.park(this);
+            }
+            if (Thread.interrupted()) {
+                this.cancel(current);
+                throw new InterruptedException();
+            }
+            this.waiters.remove(current);
+            if ((e = this.poll()) != null) {
+                return e;
+            }
+        }
+    }
+
+    /**
+     * Deregisters a waiter that is leaving. If a producer already dequeued
+     * it, the wake-up it was given is passed on.
+     */
+    private void cancel(final Thread waiter) {
+        if (!this.waiters.remove(waiter) && !this.list.isEmpty()) {
+            this.signal();
+        }
+    }
+
+    private void signal() {
+        final Thread waiter = this.waiters.poll();
+        if (waiter != null) {
+            LockSupport.unpark(waiter);
+        }
+    }
+}
@@ -11,6 +11,9 @@ import java.util.List;
 public interface INodeLinkedList<E> extends List<E> {
     ConcurrentLinkedList.Node<E> nodeAdd(E e);
 
+    /**
+     * 将 e 链接到一个从未链接过的 node 上，被移除的 node 不可复用
+     */
     void nodeAdd(E e, ConcurrentLinkedList.Node<E> node);
 
     boolean nodeRemove(ConcurrentLinkedList.Node<E> node);
@@ -22,7 +25,12 @@ public interface INodeLinkedList<E> extends List<E> {
      */
     ConcurrentLinkedList.Node<E> nodeRemove(E e);
 
-    void nodeUpdate(ConcurrentLinkedList.Node<E> node);
+    /**
+     * 以新节点重新插入 node 的元素，原 node 随之失效
+     *
+     * @return 新的 node 节点对象，node 不在链表中时为 null
+     */
+    ConcurrentLinkedList.Node<E> nodeUpdate(ConcurrentLinkedList.Node<E> node);
 
     INodeLinkedList<E> nodeClone();
 
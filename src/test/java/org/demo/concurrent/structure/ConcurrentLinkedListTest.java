@@ -0,0 +1,426 @@
+package org.demo.concurrent.structure;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ConcurrentLinkedListTest {
+
+    private static final class Box {
+        volatile int key;
+
+        Box(final int key) {
+            this.key = key;
+        }
+    }
+
+    /**
+     * An inserter parked right after passing a node must not follow that
+     * node once nodeUpdate has moved its element further down the list.
+     */
+    @Test
+    @Timeout(30)
+    void insertBehindNodeMovedByNodeUpdateKeepsOrder() throws InterruptedException {
+        final CountDownLatch passed = new CountDownLatch(1);
+        final CountDownLatch moved = new CountDownLatch(1);
+        final Comparator<Box> comparator = (a, b) -> {
+            final int result = Integer.compare(a.key, b.key);
+            if (a.key == 7 && b.key == 5 && passed.getCount() > 0) {
+                passed.countDown();
+                try {
+                    moved.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            return result;
+        };
+        final ConcurrentLinkedList<Box> list = new ConcurrentLinkedList<>(comparator);
+        final ConcurrentLinkedList.Node<Box> node = list.nodeAdd(new Box(5));
+        list.add(new Box(10));
+        list.add(new Box(20));
+        list.add(new Box(30));
+
+        final Thread inserter = new Thread(() -> list.add(new Box(7)));
+        inserter.start();
+        passed.await();
+        node.getItem().key = 25;
+        list.nodeUpdate(node);
+        moved.countDown();
+        inserter.join();
+
+        final List<Integer> keys = new ArrayList<>();
+        list.forEach(box -> keys.add(box.key));
+        assertEquals(List.of(7, 10, 20, 25, 30), keys);
+    }
+
+    /**
+     * nodeUpdate moves the element into a new node; the old one stays dead
+     * so that no stale traversal can unlink it a second time.
+     */
+    @Test
+    void nodeUpdateRelinksIntoNewNode() {
+        final ConcurrentLinkedList<Box> list = new ConcurrentLinkedList<>(Comparator.comparingInt(box -> box.key));
+        final ConcurrentLinkedList.Node<Box> node = list.nodeAdd(new Box(5));
+        list.add(new Box(10));
+        node.getItem().key = 20;
+
+        final ConcurrentLinkedList.Node<Box> updated = list.nodeUpdate(node);
+
+        assertNotSame(node, updated);
+        assertSame(node.getItem(), updated.getItem());
+        assertEquals(2, list.size());
+        assertSame(updated.getItem(), list.get(1));
+        assertFalse(list.nodeRemove(node));
+        assertNull(list.nodeUpdate(node));
+        assertThrows(IllegalArgumentException.class, () -> list.nodeAdd(node.getItem(), node));
+        assertTrue(list.nodeRemove(updated));
+        assertEquals(1, list.size());
+    }
+
+    /**
+     * Inserters racing over the same overflow must evict exactly the
+     * excess, so the list ends up holding precisely the top K.
+     */
+    @Test
+    @Timeout(60)
+    void concurrentTopKKeepsExactlyTheBest() throws InterruptedException {
+        final int capacity = 100;
+        final ConcurrentLinkedList<Integer> list = new ConcurrentLinkedList<>(Comparator.<Integer>reverseOrder(), capacity);
+        final List<Integer> expected = new ArrayList<>();
+        final Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; t++) {
+            final Random random = new Random(t);
+            final int[] values = random.ints(100_000, 0, 1_000_000).toArray();
+            for (final int v : values) {
+                expected.add(v);
+            }
+            threads[t] = new Thread(() -> {
+                for (final int v : values) {
+                    list.add(v);
+                }
+            });
+        }
+        for (final Thread t : threads) {
+            t.start();
+        }
+        for (final Thread t : threads) {
+            t.join();
+        }
+
+        expected.sort(Comparator.reverseOrder());
+        assertEquals(capacity, list.size());
+        assertEquals(expected.subList(0, capacity), new ArrayList<>(list));
+    }
+
+    /**
+     * With snapshots always overlapping, versions nobody reads any more
+     * must still be dropped, and every snapshot must see its own epoch.
+     */
+    @Test
+    void overlappingSnapshotsKeepVersionChainsShort() {
+        final ConcurrentLinkedList<Integer> list = new ConcurrentLinkedList<>(Comparator.<Integer>naturalOrder(), true);
+        for (int i = 0; i < 10; i++) {
+            list.add(i);
+        }
+        // every removal behind the pinned 0 rewrites the successor of its node
+        final ConcurrentLinkedList.Node<Integer> pinned = list.getNode(0, Comparator.naturalOrder());
+        final ArrayDeque<ConcurrentLinkedList<Integer>.SnapshotItr> open = new ArrayDeque<>();
+        final ArrayDeque<List<Integer>> expected = new ArrayDeque<>();
+        for (int round = 0; round < 100_000; round++) {
+            open.add(list.snapshot());
+            expected.add(new ArrayList<>(list));
+            list.remove(list.get(1));
+            list.add(10 + round);
+            if (open.size() == 3) {
+                final List<Integer> seen = new ArrayList<>();
+                open.poll().forEachRemaining(seen::add);
+                assertEquals(expected.poll(), seen);
+            }
+        }
+        int versions = 0;
+        for (ConcurrentLinkedList.Version<Integer> v = pinned.getVersions(); v != null; v = v.older) {
+            versions++;
+        }
+        assertTrue(versions <= 3, "versions: " + versions);
+        open.forEach(ConcurrentLinkedList.SnapshotItr::close);
+    }
+
+    private static ConcurrentLinkedList<Integer> tens() {
+        final ConcurrentLinkedList<Integer> list = new ConcurrentLinkedList<>(Comparator.<Integer>naturalOrder());
+        for (int i = 5; i >= 1; i--) {
+            list.add(i * 10);
+        }
+        return list;
+    }
+
+    @Test
+    void ceilingAndFloorFindNearestElements() {
+        final ConcurrentLinkedList<Integer> list = tens();
+        assertEquals(30, list.ceiling(30));
+        assertEquals(30, list.ceiling(25));
+        assertEquals(10, list.ceiling(Integer.MIN_VALUE));
+        assertNull(list.ceiling(51));
+        assertEquals(30, list.floor(30));
+        assertEquals(20, list.floor(25));
+        assertEquals(50, list.floor(Integer.MAX_VALUE));
+        assertNull(list.floor(9));
+        assertThrows(UnsupportedOperationException.class, () -> new ConcurrentLinkedList<Integer>(null).ceiling(1));
+    }
+
+    @Test
+    void rangeViewsHonourInclusiveAndExclusiveBounds() {
+        final ConcurrentLinkedList<Integer> list = tens();
+        assertEquals(List.of(10, 20, 30), new ArrayList<>(list.headView(30, true)));
+        assertEquals(List.of(10, 20), new ArrayList<>(list.headView(30, false)));
+        assertEquals(List.of(30, 40, 50), new ArrayList<>(list.tailView(30, true)));
+        assertEquals(List.of(40, 50), new ArrayList<>(list.tailView(30, false)));
+        assertEquals(List.of(20, 30, 40), new ArrayList<>(list.subRange(20, true, 40, true)));
+        assertEquals(List.of(30), new ArrayList<>(list.subRange(20, false, 40, false)));
+        assertEquals(List.of(20, 30, 40), new ArrayList<>(list.subRange(15, false, 45, false)));
+        assertEquals(3, list.subRange(20, true, 40, true).size());
+
+        // views are backed by the list
+        final Collection<Integer> head = list.headView(30, true);
+        list.add(15);
+        assertEquals(List.of(10, 15, 20, 30), new ArrayList<>(head));
+    }
+
+    @Test
+    void emptyRangesAndReversedBounds() {
+        final ConcurrentLinkedList<Integer> list = tens();
+        assertTrue(list.headView(10, false).isEmpty());
+        assertTrue(list.tailView(50, false).isEmpty());
+        assertTrue(list.subRange(30, false, 30, true).isEmpty());
+        assertTrue(list.subRange(31, true, 39, true).isEmpty());
+        assertEquals(List.of(30), new ArrayList<>(list.subRange(30, true, 30, true)));
+        assertEquals(0, list.subRange(31, true, 39, true).size());
+        assertFalse(list.subRange(31, true, 39, true).iterator().hasNext());
+        assertThrows(NoSuchElementException.class, () -> list.headView(5, true).iterator().next());
+        assertThrows(IllegalArgumentException.class, () -> list.subRange(40, true, 20, true));
+        assertTrue(new ConcurrentLinkedList<>(Comparator.<Integer>naturalOrder()).tailView(0, true).isEmpty());
+    }
+
+    @Test
+    void rangeIteratorRemovesFromTheList() {
+        final ConcurrentLinkedList<Integer> list = tens();
+        final Iterator<Integer> it = list.subRange(20, true, 40, true).iterator();
+        assertThrows(IllegalStateException.class, it::remove);
+        assertEquals(20, it.next());
+        assertEquals(30, it.next());
+        it.remove();
+        assertThrows(IllegalStateException.class, it::remove);
+        assertEquals(40, it.next());
+        assertFalse(it.hasNext());
+
+        assertEquals(List.of(10, 20, 40, 50), new ArrayList<>(list));
+        assertEquals(4, list.size());
+    }
+
+    @Test
+    void pollLastTakesFromTheEnd() {
+        final ConcurrentLinkedList<Integer> list = tens();
+        assertEquals(50, list.pollLast());
+        assertEquals(40, list.pollLast());
+        assertEquals(30, list.peekLast());
+        assertEquals(3, list.size());
+        list.add(45);
+        assertEquals(45, list.pollLast());
+        assertEquals(30, list.pollLast());
+        assertEquals(20, list.pollLast());
+        assertEquals(10, list.pollLast());
+        assertNull(list.pollLast());
+        assertTrue(list.isEmpty());
+        assertEquals(0, list.size());
+        list.add(7);
+        assertEquals(List.of(7), new ArrayList<>(list));
+    }
+
+    @Test
+    void cursorWalksNodesAndCanBeReset() {
+        final ConcurrentLinkedList<Integer> list = tens();
+        final ConcurrentLinkedList<Integer>.Cursor cursor = list.cursor();
+        assertThrows(NoSuchElementException.class, cursor::node);
+        assertThrows(NoSuchElementException.class, cursor::item);
+
+        final List<Integer> seen = new ArrayList<>();
+        while (cursor.advance()) {
+            seen.add(cursor.item());
+            assertSame(cursor.item(), cursor.node().getItem());
+        }
+        assertEquals(List.of(10, 20, 30, 40, 50), seen);
+        assertThrows(NoSuchElementException.class, cursor::node);
+        assertFalse(cursor.advance());
+
+        list.pollFirst();
+        list.add(60);
+        assertSame(cursor, cursor.reset());
+        assertThrows(NoSuchElementException.class, cursor::node);
+        seen.clear();
+        while (cursor.advance()) {
+            seen.add(cursor.item());
+        }
+        assertEquals(List.of(20, 30, 40, 50, 60), seen);
+
+        final ConcurrentLinkedList<Integer>.Cursor empty = new ConcurrentLinkedList<>(Comparator.<Integer>naturalOrder()).cursor();
+        assertFalse(empty.advance());
+        assertThrows(NoSuchElementException.class, empty::node);
+    }
+
+    @Test
+    void forEachNodeStopsWhenVisitorReturnsFalse() {
+        final ConcurrentLinkedList<Integer> list = tens();
+        final List<Integer> seen = new ArrayList<>();
+        assertEquals(3, list.forEachNode(node -> {
+            seen.add(node.getItem());
+            return node.getItem() < 30;
+        }));
+        assertEquals(List.of(10, 20, 30), seen);
+        assertEquals(5, list.forEachNode(node -> true));
+        assertEquals(0, new ConcurrentLinkedList<>(Comparator.<Integer>naturalOrder()).forEachNode(node -> true));
+        assertThrows(NullPointerException.class, () -> list.forEachNode(null));
+    }
+
+    @Test
+    void searchNodeReturnsFirstMatchForKey() {
+        final ConcurrentLinkedList<Integer> list = tens();
+        final ConcurrentLinkedList.NodeMatcher<Integer> atLeast = (node, key) -> node.getItem() >= key;
+        assertEquals(30, list.searchNode(25, atLeast).getItem());
+        assertEquals(10, list.searchNode(Long.MIN_VALUE, atLeast).getItem());
+        assertNull(list.searchNode(51, atLeast));
+        assertTrue(list.nodeRemove(list.searchNode(30, atLeast)));
+        assertEquals(40, list.searchNode(25, atLeast).getItem());
+    }
+
+    @Test
+    void forEachVisitsElementsInOrder() {
+        final ConcurrentLinkedList<Integer> list = tens();
+        final List<Integer> seen = new ArrayList<>();
+        list.forEach(seen::add);
+        assertEquals(List.of(10, 20, 30, 40, 50), seen);
+        list.pollLast();
+        seen.clear();
+        list.forEach(seen::add);
+        assertEquals(List.of(10, 20, 30, 40), seen);
+        assertThrows(NullPointerException.class, () -> list.forEach(null));
+    }
+
+    @Test
+    void sortedOfKeepsEqualElementsInEncounterOrder() {
+        final List<Box> boxes = new ArrayList<>();
+        for (int i = 0; i < 5_000; i++) {
+            boxes.add(new Box((i * 7919) % 100));
+        }
+        final ConcurrentLinkedList<Box> list = ConcurrentLinkedList.sortedOf(Comparator.comparingInt(box -> box.key), boxes);
+
+        final List<Box> expected = new ArrayList<>(boxes);
+        expected.sort(Comparator.comparingInt(box -> box.key));
+        assertEquals(boxes.size(), list.size());
+        final List<Box> actual = new ArrayList<>(list);
+        for (int i = 0; i < expected.size(); i++) {
+            assertSame(expected.get(i), actual.get(i));
+        }
+        list.add(new Box(50));
+        assertEquals(boxes.size() + 1, list.size());
+    }
+
+    @Test
+    void mergeKeepsOrderAndPutsOtherAfterEqualElements() {
+        final Comparator<Box> byKey = Comparator.comparingInt(box -> box.key);
+        final ConcurrentLinkedList<Box> list = new ConcurrentLinkedList<>(byKey);
+        final Box one = new Box(1);
+        final Box two = new Box(2);
+        list.add(one);
+        list.add(two);
+        final ConcurrentLinkedList<Box> other = new ConcurrentLinkedList<>(byKey);
+        final Box zero = new Box(0);
+        final Box otherOne = new Box(1);
+        final Box otherTwo = new Box(2);
+        final Box otherTwoAgain = new Box(2);
+        other.add(otherTwo);
+        other.add(zero);
+        other.add(otherOne);
+        other.add(otherTwoAgain);
+
+        list.merge(other);
+
+        assertEquals(List.of(zero, one, otherOne, two, otherTwo, otherTwoAgain), new ArrayList<>(list));
+        assertEquals(6, list.size());
+        assertTrue(other.isEmpty());
+        assertEquals(0, other.size());
+        assertThrows(IllegalArgumentException.class, () -> list.merge(list));
+    }
+
+    @Test
+    void mergeResortsOtherListWithDifferentComparator() {
+        final ConcurrentLinkedList<Integer> list = new ConcurrentLinkedList<>(Comparator.<Integer>naturalOrder());
+        list.add(4);
+        list.add(1);
+        final ConcurrentLinkedList<Integer> other = new ConcurrentLinkedList<>(Comparator.<Integer>reverseOrder());
+        other.add(3);
+        other.add(5);
+        other.add(2);
+        assertEquals(List.of(5, 3, 2), new ArrayList<>(other));
+
+        list.merge(other);
+
+        assertEquals(List.of(1, 2, 3, 4, 5), new ArrayList<>(list));
+    }
+
+    @Test
+    void mergeIntoTopKListTrimsToCapacity() {
+        final ConcurrentLinkedList<Integer> list = new ConcurrentLinkedList<>(Comparator.<Integer>naturalOrder(), 3);
+        list.add(1);
+        list.add(5);
+        list.add(9);
+        final ConcurrentLinkedList<Integer> other = new ConcurrentLinkedList<>(Comparator.<Integer>naturalOrder());
+        other.add(10);
+        other.add(3);
+        other.add(2);
+
+        list.merge(other);
+
+        assertEquals(3, list.size());
+        assertEquals(List.of(1, 2, 3), new ArrayList<>(list));
+        assertEquals(3, list.peekLast());
+    }
+
+    /**
+     * Expired elements still counted by size() must not leak out as nulls,
+     * stale values or NullPointerExceptions.
+     */
+    @Test
+    void expiredElementsNotYetUnlinkedAreNeverReturned() throws InterruptedException {
+        final ConcurrentLinkedList<Integer> list =
+                new ConcurrentLinkedList<>(Comparator.<Integer>naturalOrder()).expireAfterWrite(1, TimeUnit.MILLISECONDS);
+        list.add(1);
+        list.add(2);
+        list.add(3);
+        Thread.sleep(10);
+
+        assertEquals(0, list.toArray().length);
+        assertEquals(List.of(), new ArrayList<>(list));
+        assertNull(list.toArray(new Integer[2])[0]);
+        assertEquals(0, list.stream().count());
+        assertThrows(IndexOutOfBoundsException.class, () -> list.get(list.size() - 1));
+        assertThrows(IndexOutOfBoundsException.class, () -> list.remove(list.size() - 1));
+        assertNull(list.peekLast());
+        assertNull(list.peekFirst());
+        assertTrue(list.isEmpty());
+        assertTrue(new ConcurrentPriorityBlockingQueue<>(list).isEmpty());
+        // empty once nothing live is left, even if not yet unlinked
+        list.expireAfterAccess(1, TimeUnit.MILLISECONDS);
+    }
+}
@@ -0,0 +1,123 @@
+package org.demo.concurrent.structure;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ConcurrentPriorityBlockingQueueTest {
+
+    private static final int PRODUCERS = 4;
+    private static final int PER_PRODUCER = 50_000;
+
+    /**
+     * Producers race with consumers removing from the head in batches and
+     * from the tail, while a reader checks every snapshot stays sorted.
+     * Every element offered must come out exactly once.
+     */
+    @Test
+    @Timeout(120)
+    void producersAndConsumersLoseNothing() throws InterruptedException {
+        final ConcurrentLinkedList<Integer> list = new ConcurrentLinkedList<>(Comparator.<Integer>naturalOrder(), true);
+        final ConcurrentPriorityBlockingQueue<Integer> queue = new ConcurrentPriorityBlockingQueue<>(list);
+        final Queue<Integer> consumed = new ConcurrentLinkedQueue<>();
+        final AtomicBoolean produced = new AtomicBoolean();
+        final AtomicInteger unsortedSnapshots = new AtomicInteger();
+
+        final List<Thread> producers = new ArrayList<>();
+        for (int p = 0; p < PRODUCERS; p++) {
+            final int base = p * PER_PRODUCER;
+            producers.add(new Thread(() -> {
+                for (int i = 0; i < PER_PRODUCER; i++) {
+                    // distinct values, out of order: 7919 is coprime with PER_PRODUCER
+                    queue.offer(base + i * 7919 % PER_PRODUCER);
+                }
+            }));
+        }
+        final List<Thread> consumers = new ArrayList<>();
+        consumers.add(new Thread(() -> {
+            try {
+                while (!produced.get() || !queue.isEmpty()) {
+                    final Integer e = queue.poll(1, TimeUnit.MILLISECONDS);
+                    if (e != null) {
+                        consumed.add(e);
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }));
+        consumers.add(new Thread(() -> {
+            while (!produced.get() || !queue.isEmpty()) {
+                consumed.addAll(queue.pollBatch(7));
+            }
+        }));
+        consumers.add(new Thread(() -> {
+            while (!produced.get() || !queue.isEmpty()) {
+                final Integer e = list.pollLast();
+                if (e != null) {
+                    consumed.add(e);
+                }
+            }
+        }));
+        consumers.add(new Thread(() -> {
+            while (!produced.get()) {
+                try (ConcurrentLinkedList<Integer>.SnapshotItr it = list.snapshot()) {
+                    int prev = Integer.MIN_VALUE;
+                    while (it.hasNext()) {
+                        final int e = it.next();
+                        if (e < prev) {
+                            unsortedSnapshots.incrementAndGet();
+                        }
+                        prev = e;
+                    }
+                }
+            }
+        }));
+
+        consumers.forEach(Thread::start);
+        producers.forEach(Thread::start);
+        for (final Thread t : producers) {
+            t.join();
+        }
+        produced.set(true);
+        for (final Thread t : consumers) {
+            t.join();
+        }
+
+        assertEquals(0, unsortedSnapshots.get());
+        assertTrue(queue.isEmpty());
+        assertEquals(0, list.size());
+        final List<Integer> all = new ArrayList<>(consumed);
+        Collections.sort(all);
+        assertEquals(PRODUCERS * PER_PRODUCER, all.size());
+        for (int i = 0; i < all.size(); i++) {
+            assertEquals(i, all.get(i));
+        }
+    }
+
+    @Test
+    void remainingCapacityFollowsTopKList() {
+        final ConcurrentPriorityBlockingQueue<Integer> queue =
+                new ConcurrentPriorityBlockingQueue<>(new ConcurrentLinkedList<>(Comparator.<Integer>naturalOrder(), 2));
+        assertEquals(2, queue.remainingCapacity());
+        queue.offer(5);
+        queue.offer(1);
+        assertEquals(0, queue.remainingCapacity());
+        assertFalse(queue.offer(9));
+        assertEquals(Integer.MAX_VALUE, new ConcurrentPriorityBlockingQueue<>((Comparator<Integer>) null).remainingCapacity());
+    }
+
+    @Test
+    void batchSizeMustBePositive() {
+        final ConcurrentPriorityBlockingQueue<Integer> queue = new ConcurrentPriorityBlockingQueue<>(Comparator.<Integer>naturalOrder());
+        assertThrows(IllegalArgumentException.class, () -> queue.pollBatch(0));
+        assertThrows(IllegalArgumentException.class, () -> queue.takeBatch(-1));
+    }
+}